@@ -13,6 +13,8 @@ package org.torpedoquery.jdbc.ssh;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.DriverPropertyInfo;
@@ -66,10 +68,69 @@ public class JDBCUtil {
         sshInfo.setSshUser(queryParams.getOrDefault("sshUser", System.getProperty("user.name")));
         sshInfo.setPrivateKey(queryParams.getOrDefault("sshKey", System.getProperty("user.home") + "/.ssh/id_rsa"));
         sshInfo.setPassphrase(queryParams.get("sshPassphrase"));
+        sshInfo.setLocalSocket(queryParams.get("sshLocalSocket"));
+        checkLocalSocketReferenced(sshInfo.getLocalSocket(), queryParams, properties);
 
         return sshInfo;
     }
 
+    /**
+     * Ensures the underlying driver is told to use the local socket. The rewritten URL points
+     * at {@code localhost} without a port, so a driver that is not configured with the socket
+     * path would silently connect to whatever database listens on the default local port.
+     * <p>
+     * Values are compared to the socket path as exact strings, once as given and once
+     * URL-decoded, the way drivers such as pgjdbc decode their parameters.
+     *
+     * @param localSocket the {@code sshLocalSocket} value, may be {@code null}
+     * @param queryParams the URL query parameters
+     * @param properties  additional connection properties
+     * @throws SQLException if no other URL parameter or connection property references the socket path
+     */
+    private static void checkLocalSocketReferenced(String localSocket, Map<String, String> queryParams,
+                                                   Properties properties) throws SQLException {
+        if (localSocket == null || localSocket.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> param : queryParams.entrySet()) {
+            if (!"sshLocalSocket".equals(param.getKey()) && referencesLocalSocket(localSocket, param.getValue())) {
+                return;
+            }
+        }
+        if (properties != null) {
+            for (String name : properties.stringPropertyNames()) {
+                if (referencesLocalSocket(localSocket, properties.getProperty(name))) {
+                    return;
+                }
+            }
+        }
+        throw new SQLException("sshLocalSocket is set to " + localSocket
+                + " but no driver parameter references it (e.g. socketFactoryArg for PostgreSQL);"
+                + " the driver would connect to localhost over TCP instead of the tunnel");
+    }
+
+    /**
+     * Checks whether a driver parameter value is the socket path, either verbatim or URL-decoded.
+     *
+     * @param localSocket the socket path
+     * @param value       the parameter value, may be {@code null}
+     * @return {@code true} if the value designates the socket path
+     */
+    private static boolean referencesLocalSocket(String localSocket, String value) {
+        if (value == null) {
+            return false;
+        }
+        if (localSocket.equals(value)) {
+            return true;
+        }
+        try {
+            return localSocket.equals(URLDecoder.decode(value, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            // Not a valid encoding, only the verbatim comparison applies
+            return false;
+        }
+    }
+
     /**
      * Retrieves the default host from the driver's property info.
      *
@@ -34,6 +34,8 @@ public class SSHInfo {
 
 	private int remotePort;
 
+	private String localSocket;
+
 	private Driver underlyingDriver;
 
 	private URI originalUri;
@@ -76,6 +78,14 @@ public class SSHInfo {
 		this.remotePort = remotePort;
 	}
 
+	public String getLocalSocket() {
+		return localSocket;
+	}
+
+	public void setLocalSocket(String localSocket) {
+		this.localSocket = localSocket;
+	}
+
 	public Driver getUnderlyingDriver() {
 		return underlyingDriver;
 	}
@@ -120,6 +130,7 @@ public class SSHInfo {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + ((localSocket == null) ? 0 : localSocket.hashCode());
 		result = prime * result + ((originalUri == null) ? 0 : originalUri.hashCode());
 		result = prime * result + ((passphrase == null) ? 0 : passphrase.hashCode());
 		result = prime * result + ((privateKey == null) ? 0 : privateKey.hashCode());
@@ -141,6 +152,11 @@ public class SSHInfo {
 		if (getClass() != obj.getClass())
 			return false;
 		SSHInfo other = (SSHInfo) obj;
+		if (localSocket == null) {
+			if (other.localSocket != null)
+				return false;
+		} else if (!localSocket.equals(other.localSocket))
+			return false;
 		if (originalUri == null) {
 			if (other.originalUri != null)
 				return false;
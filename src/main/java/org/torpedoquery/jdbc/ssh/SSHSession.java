@@ -20,12 +20,21 @@ import com.jcraft.jsch.Session;
 public class SSHSession {
 
 	private int localPort;
+	private UnixSocketForwarder localSocketForwarder;
 	private Session session;
 
 	public SSHSession(int localPort) {
 		this.localPort = localPort;
 	}
 
+	SSHSession(UnixSocketForwarder localSocketForwarder) {
+		this(-1);
+		this.localSocketForwarder = localSocketForwarder;
+	}
+
+	/**
+	 * @return the local TCP port of the tunnel, or {@code -1} when the tunnel listens on a Unix domain socket
+	 */
 	public int getLocalPort() {
 		return localPort;
 	}
@@ -41,4 +50,23 @@ public class SSHSession {
 	public String getLocalHost() {
 		return "localhost";
 	}
+
+	/**
+	 * @return {@code true} while the SSH session is connected
+	 */
+	public boolean isConnected() {
+		return session != null && session.isConnected();
+	}
+
+	/**
+	 * Closes the local listener and disconnects the SSH session.
+	 */
+	public void disconnect() {
+		if (localSocketForwarder != null) {
+			localSocketForwarder.close();
+		}
+		if (session != null) {
+			session.disconnect();
+		}
+	}
 }
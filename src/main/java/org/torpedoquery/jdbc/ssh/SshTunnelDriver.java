@@ -16,9 +16,9 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 
 import java.io.IOException;
-import java.net.ServerSocket;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
@@ -55,6 +55,13 @@ public class SshTunnelDriver implements Driver {
 
     /**
      * Establishes a connection to the database through an SSH tunnel.
+     * <p>
+     * The underlying driver is given the original URL with the host and port replaced by the
+     * tunnel's local endpoint. When {@code sshLocalSocket} is set there is no local port, so the
+     * underlying driver must be configured to connect through that socket path itself (for
+     * example with a socket factory); otherwise it would reach the database listening on
+     * {@code localhost}'s default port rather than the tunnel. Such URLs are rejected when no
+     * other parameter or property references the socket path.
      *
      * @param url  the database URL
      * @param info a list of arbitrary string tag/value pairs as connection arguments
@@ -69,7 +76,7 @@ public class SshTunnelDriver implements Driver {
 
         try {
             SSHInfo sshInfo = JDBCUtil.getSSHinfo(url, info);
-            SSHSession sshSession = sessions.computeIfAbsent(sshInfo, this::createSSHTunnel);
+            SSHSession sshSession = sessions.compute(sshInfo, this::reuseOrCreateSSHTunnel);
             Driver underlyingDriver = sshInfo.getUnderlyingDriver();
             URI originalUri = sshInfo.getOriginalUri();
 
@@ -155,44 +162,78 @@ public class SshTunnelDriver implements Driver {
         return EMPTY_INFO;
     }
 
+    /**
+     * Returns the cached tunnel while its SSH session is connected. A tunnel whose session
+     * dropped is torn down first, releasing its local listener, and then replaced.
+     *
+     * @param sshInfo  the SSH information
+     * @param existing the cached tunnel, may be {@code null}
+     * @return a connected {@link SSHSession}
+     */
+    private SSHSession reuseOrCreateSSHTunnel(SSHInfo sshInfo, SSHSession existing) {
+        if (existing != null) {
+            if (existing.isConnected()) {
+                return existing;
+            }
+            existing.disconnect();
+        }
+        return createSSHTunnel(sshInfo);
+    }
+
     /**
      * Creates an SSH tunnel based on the provided {@link SSHInfo}.
+     * <p>
+     * The local listener is bound once, when the tunnel is created, and stays bound for the
+     * lifetime of the SSH session: either a Unix domain socket when {@code sshLocalSocket} is
+     * set, or an ephemeral TCP port chosen by the operating system at bind time.
      *
      * @param sshInfo the SSH information
      * @return an {@link SSHSession} representing the SSH tunnel
      */
     private SSHSession createSSHTunnel(SSHInfo sshInfo) {
+        Session session = null;
         try {
             JSch jsch = new JSch();
-            SSHSession sshSession = new SSHSession(getRandomPort());
 
             if (sshInfo.getPrivateKey() != null) {
                 jsch.addIdentity(sshInfo.getPrivateKey(), sshInfo.getPassphrase());
             }
 
-            Session session = jsch.getSession(sshInfo.getSshUser(), sshInfo.getSshHost(), sshInfo.getSshPort());
+            session = jsch.getSession(sshInfo.getSshUser(), sshInfo.getSshHost(), sshInfo.getSshPort());
             session.setConfig("StrictHostKeyChecking", "no");
 
             session.connect();
-            session.setPortForwardingL(sshSession.getLocalPort(), sshInfo.getRemoteHost(), sshInfo.getRemotePort());
+
+            SSHSession sshSession;
+            String localSocket = sshInfo.getLocalSocket();
+            if (localSocket != null && !localSocket.isEmpty()) {
+                sshSession = new SSHSession(UnixSocketForwarder.start(session, Paths.get(localSocket),
+                        sshInfo.getRemoteHost(), sshInfo.getRemotePort()));
+            } else {
+                // Port 0 lets the listener bind atomically to a free port, no probe socket needed
+                int localPort = session.setPortForwardingL(0, sshInfo.getRemoteHost(), sshInfo.getRemotePort());
+                sshSession = new SSHSession(localPort);
+            }
             sshSession.setSession(session);
 
             return sshSession;
         } catch (JSchException e) {
+            disconnect(session);
             throw new RuntimeException("Cannot establish SSH connection: " + e.getMessage(), e);
+        } catch (IOException e) {
+            disconnect(session);
+            throw new RuntimeException("Unable to bind local socket: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Obtains a random available port on the local machine.
+     * Disconnects a partially established SSH session.
      *
-     * @return a random available port number
+     * @param session the session to disconnect, may be {@code null}
      */
-    private static int getRandomPort() {
-        try (ServerSocket server = new ServerSocket(0)) {
-            return server.getLocalPort();
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to find an available port: " + e.getMessage(), e);
+    private static void disconnect(Session session) {
+        if (session != null) {
+            session.disconnect();
         }
     }
 }
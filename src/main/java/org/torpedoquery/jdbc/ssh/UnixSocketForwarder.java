@@ -0,0 +1,426 @@
+/**
+ * Copyright © 2024 Xavier Jodoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND.
+ */
+package org.torpedoquery.jdbc.ssh;
+
+import com.jcraft.jsch.ChannelDirectTCPIP;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@code UnixSocketForwarder} class listens on a Unix domain socket and forwards
+ * every accepted connection to the remote host through a {@code direct-tcpip} channel
+ * of an SSH {@link Session}, so the local leg of the tunnel bypasses the TCP/IP stack.
+ * <p>
+ * Unix domain socket channels are only available on Java 16 and later; they are looked
+ * up reflectively so the library keeps running on older runtimes when this endpoint is
+ * not requested.
+ */
+final class UnixSocketForwarder implements Runnable {
+
+    /**
+     * Mask selecting the file type bits of {@code unix:mode}.
+     */
+    private static final int S_IFMT = 0170000;
+
+    /**
+     * File type of a socket within {@link #S_IFMT}.
+     */
+    private static final int S_IFSOCK = 0140000;
+
+    private static final String UNSUPPORTED_MESSAGE = "Unix domain sockets require Java 16 or later";
+
+    /**
+     * How often the accept loop checks that the SSH session is still connected.
+     */
+    private static final long SESSION_CHECK_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Pause after a failed accept, so a persistent error such as running out of file
+     * descriptors does not spin the loop.
+     */
+    private static final long ACCEPT_RETRY_MILLIS = 100;
+
+    private static final Logger LOGGER = Logger.getLogger(UnixSocketForwarder.class.getName());
+
+    private final Session session;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Path socketPath;
+    private final SocketFileId socketFileId;
+    private final String remoteHost;
+    private final int remotePort;
+    private volatile boolean closed;
+
+    private UnixSocketForwarder(Session session, ServerSocketChannel server, Selector selector, Path socketPath,
+                                SocketFileId socketFileId, String remoteHost, int remotePort) {
+        this.session = session;
+        this.server = server;
+        this.selector = selector;
+        this.socketPath = socketPath;
+        this.socketFileId = socketFileId;
+        this.remoteHost = remoteHost;
+        this.remotePort = remotePort;
+    }
+
+    /**
+     * Binds a Unix domain socket at the given path and starts forwarding accepted
+     * connections to {@code remoteHost:remotePort} through the SSH session.
+     *
+     * @param session    the connected SSH session
+     * @param socketPath the file system path of the local socket
+     * @param remoteHost the host to connect to from the SSH server
+     * @param remotePort the port to connect to from the SSH server
+     * @return the running forwarder
+     * @throws IOException if the socket cannot be bound, the path is in use or is not a socket,
+     *                     or the runtime does not support Unix domain sockets
+     */
+    static UnixSocketForwarder start(Session session, Path socketPath, String remoteHost, int remotePort) throws IOException {
+        removeStaleSocket(socketPath);
+
+        ServerSocketChannel server = openUnixServerChannel();
+        Selector selector = null;
+        SocketFileId socketFileId;
+        try {
+            server.bind(unixSocketAddress(socketPath));
+            socketFileId = SocketFileId.of(socketPath);
+            // Non-blocking accept lets the loop wake up periodically and notice a dropped session
+            server.configureBlocking(false);
+            selector = Selector.open();
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            if (selector != null) {
+                selector.close();
+            }
+            server.close();
+            throw e;
+        }
+
+        UnixSocketForwarder forwarder = new UnixSocketForwarder(session, server, selector, socketPath, socketFileId,
+                remoteHost, remotePort);
+        Thread thread = new Thread(forwarder, "ssh-tunnel-" + socketPath);
+        thread.setDaemon(true);
+        thread.start();
+        return forwarder;
+    }
+
+    /**
+     * Accepts local connections until the forwarder is closed or the SSH session disconnects.
+     * Failed accepts are logged and retried; only a close or a dropped session ends the loop.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed && session.isConnected()) {
+                selector.select(SESSION_CHECK_MILLIS);
+                selector.selectedKeys().clear();
+
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (IOException e) {
+                    if (closed) {
+                        break;
+                    }
+                    LOGGER.log(Level.WARNING, "Failed to accept connection on " + socketPath, e);
+                    pause();
+                    continue;
+                }
+                if (client != null) {
+                    forward(client);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOGGER.log(Level.SEVERE, "SSH tunnel listener on " + socketPath + " failed", e);
+            }
+        } finally {
+            close();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Ignore, nothing left to release
+            }
+        }
+    }
+
+    /**
+     * Opens a {@code direct-tcpip} channel for the accepted connection.
+     *
+     * @param client the accepted local connection
+     */
+    private void forward(SocketChannel client) {
+        try {
+            ChannelDirectTCPIP channel = (ChannelDirectTCPIP) session.openChannel("direct-tcpip");
+            channel.setInputStream(new ChannelInput(client));
+            channel.setOutputStream(new ChannelOutput(client));
+            channel.setHost(remoteHost);
+            channel.setPort(remotePort);
+            channel.setOrgIPAddress("127.0.0.1");
+            channel.setOrgPort(0);
+            channel.connect();
+        } catch (JSchException e) {
+            LOGGER.log(Level.WARNING, "Failed to open SSH channel to " + remoteHost + ":" + remotePort, e);
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                // The client sees the connection drop either way
+            }
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(ACCEPT_RETRY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        }
+    }
+
+    /**
+     * Returns whether the forwarder stopped accepting connections.
+     *
+     * @return {@code true} once closed
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file, unless the path has since
+     * been replaced by another owner. Safe to call more than once and from any thread.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        selector.wakeup();
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Ignore, nothing left to release
+        }
+        deleteIfOwned(socketPath, socketFileId);
+    }
+
+    /**
+     * Makes the path available for binding. Nothing is done when the path does not exist.
+     * An existing socket is removed only when it is stale, i.e. a connection attempt to it
+     * is refused; any other file is left untouched.
+     *
+     * @param socketPath the path of the socket to bind
+     * @throws BindException if a process is still listening on the socket
+     * @throws IOException   if the path exists and is not a socket
+     */
+    static void removeStaleSocket(Path socketPath) throws IOException {
+        if (!Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (!isSocket(socketPath)) {
+            throw new IOException("Not a socket, refusing to replace it: " + socketPath);
+        }
+
+        try (SocketChannel probe = openUnixChannel()) {
+            probe.connect(unixSocketAddress(socketPath));
+        } catch (ConnectException e) {
+            // Nobody is listening anymore
+            Files.deleteIfExists(socketPath);
+            return;
+        }
+        throw new BindException("Address already in use: " + socketPath);
+    }
+
+    /**
+     * Deletes the socket file if it is still the one identified by {@code socketFileId}.
+     *
+     * @param socketPath   the path of the socket
+     * @param socketFileId the identity recorded when the socket was bound
+     */
+    static void deleteIfOwned(Path socketPath, SocketFileId socketFileId) {
+        try {
+            if (socketFileId.equals(SocketFileId.of(socketPath))) {
+                Files.deleteIfExists(socketPath);
+            }
+        } catch (IOException e) {
+            // Already gone or no longer accessible, nothing to clean up
+        }
+    }
+
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & S_IFMT) == S_IFSOCK;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // No unix attribute view, sockets are reported as "other" files
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+        }
+    }
+
+    static SocketChannel openUnixChannel() throws IOException {
+        return openUnix(SocketChannel.class);
+    }
+
+    static ServerSocketChannel openUnixServerChannel() throws IOException {
+        return openUnix(ServerSocketChannel.class);
+    }
+
+    /**
+     * Calls the static {@code open(ProtocolFamily)} factory of the given channel class with
+     * the {@code UNIX} protocol family.
+     *
+     * @param channelClass {@link SocketChannel} or {@link ServerSocketChannel}
+     * @return the new channel
+     * @throws IOException if the runtime does not support Unix domain sockets
+     */
+    private static <T> T openUnix(Class<T> channelClass) throws IOException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            return channelClass.cast(channelClass.getMethod("open", ProtocolFamily.class).invoke(null, unix));
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new IOException(UNSUPPORTED_MESSAGE, e);
+        }
+    }
+
+    static SocketAddress unixSocketAddress(Path socketPath) throws IOException {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", Path.class)
+                    .invoke(null, socketPath);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(UNSUPPORTED_MESSAGE, e);
+        }
+    }
+
+    /**
+     * Identity of a socket file, used to tell whether the path still refers to the socket
+     * bound by this forwarder.
+     */
+    static final class SocketFileId {
+
+        private final Object fileKey;
+        private final Object lastModifiedTime;
+
+        private SocketFileId(Object fileKey, Object lastModifiedTime) {
+            this.fileKey = fileKey;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+
+        static SocketFileId of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return new SocketFileId(attributes.fileKey(), attributes.lastModifiedTime());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileKey, lastModifiedTime);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof SocketFileId))
+                return false;
+            SocketFileId other = (SocketFileId) obj;
+            return Objects.equals(fileKey, other.fileKey) && Objects.equals(lastModifiedTime, other.lastModifiedTime);
+        }
+    }
+
+    /**
+     * Reads directly from the socket channel. {@code Channels.newInputStream} is not used
+     * because it shares the channel's blocking lock with the output stream, which would
+     * serialize the two directions of the tunnel.
+     */
+    private static final class ChannelInput extends InputStream {
+
+        private final SocketChannel channel;
+
+        ChannelInput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            return channel.read(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes directly to the socket channel, see {@link ChannelInput}.
+     */
+    private static final class ChannelOutput extends OutputStream {
+
+        private final SocketChannel channel;
+
+        ChannelOutput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
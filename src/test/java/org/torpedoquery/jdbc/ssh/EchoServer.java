@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2018 Xavier Jodoin (xavier@jodoin.me)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.torpedoquery.jdbc.ssh;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Loopback TCP server that sends back every byte it receives, standing in for a database.
+ */
+public class EchoServer implements Closeable {
+
+	private final ServerSocket serverSocket;
+
+	public EchoServer() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(this::acceptLoop, "echo-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	private void acceptLoop() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread connection = new Thread(() -> {
+					try (Socket s = socket) {
+						s.getInputStream().transferTo(s.getOutputStream());
+					} catch (IOException e) {
+						// Connection closed
+					}
+				});
+				connection.setDaemon(true);
+				connection.start();
+			} catch (IOException e) {
+				// Server closed
+			}
+		}
+	}
+}
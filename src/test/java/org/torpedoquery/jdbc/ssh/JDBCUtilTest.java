@@ -60,4 +60,50 @@ public class JDBCUtilTest {
 		assertEquals("test", ssHinfo.getSshUser());
 	}
 
+	@Test
+	public void testWithLocalSocket() throws SQLException, URISyntaxException {
+		SSHInfo ssHinfo = JDBCUtil.getSSHinfo(
+				"jdbc:ssh:mysql://toto.com:3333/feedback?sshLocalSocket=/tmp/feedback.sock&socketFactoryArg=/tmp/feedback.sock",
+				new Properties());
+
+		assertEquals("/tmp/feedback.sock", ssHinfo.getLocalSocket());
+		assertNull(JDBCUtil.getSSHinfo("jdbc:ssh:mysql://toto.com:3333/feedback", new Properties()).getLocalSocket());
+	}
+
+	@Test
+	public void testWithLocalSocketInProperties() throws SQLException, URISyntaxException {
+		Properties properties = new Properties();
+		properties.setProperty("socketFactoryArg", "/tmp/feedback.sock");
+
+		SSHInfo ssHinfo = JDBCUtil.getSSHinfo("jdbc:ssh:mysql://toto.com:3333/feedback?sshLocalSocket=/tmp/feedback.sock",
+				properties);
+
+		assertEquals("/tmp/feedback.sock", ssHinfo.getLocalSocket());
+	}
+
+	@Test
+	public void testWithEncodedLocalSocketReference() throws SQLException, URISyntaxException {
+		SSHInfo ssHinfo = JDBCUtil.getSSHinfo(
+				"jdbc:ssh:mysql://toto.com:3333/feedback?sshLocalSocket=/tmp/feedback.sock&socketFactoryArg=%2Ftmp%2Ffeedback.sock",
+				new Properties());
+
+		assertEquals("/tmp/feedback.sock", ssHinfo.getLocalSocket());
+	}
+
+	@Test
+	public void testWithFormEncodedLocalSocketReference() throws SQLException, URISyntaxException {
+		Properties properties = new Properties();
+		properties.setProperty("socketFactoryArg", "/tmp/my+feedback.sock");
+
+		SSHInfo ssHinfo = JDBCUtil.getSSHinfo(
+				"jdbc:ssh:mysql://toto.com:3333/feedback?sshLocalSocket=/tmp/my%20feedback.sock", properties);
+
+		assertEquals("/tmp/my feedback.sock", ssHinfo.getLocalSocket());
+	}
+
+	@Test(expected = SQLException.class)
+	public void testWithUnreferencedLocalSocket() throws SQLException, URISyntaxException {
+		JDBCUtil.getSSHinfo("jdbc:ssh:mysql://toto.com:3333/feedback?sshLocalSocket=/tmp/feedback.sock", new Properties());
+	}
+
 }
@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2018 Xavier Jodoin (xavier@jodoin.me)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.torpedoquery.jdbc.ssh;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.pubkey.AcceptAllPublickeyAuthenticator;
+import org.apache.sshd.server.forward.AcceptAllForwardingFilter;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+
+/**
+ * In-process SSH server for tests. Accepts the given user and password, any public key,
+ * and every port forwarding request.
+ */
+public class MockSSHServer {
+
+	private final SshServer sshServer;
+
+	public MockSSHServer(int port, String user, String password) {
+		sshServer = SshServer.setUpDefaultServer();
+		sshServer.setHost("127.0.0.1");
+		sshServer.setPort(port);
+		sshServer.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+		sshServer.setPasswordAuthenticator(
+				(username, pass, serverSession) -> user.equals(username) && password.equals(pass));
+		sshServer.setPublickeyAuthenticator(AcceptAllPublickeyAuthenticator.INSTANCE);
+		sshServer.setForwardingFilter(AcceptAllForwardingFilter.INSTANCE);
+	}
+
+	public void start() throws IOException {
+		sshServer.start();
+	}
+
+	public void stop() throws IOException {
+		sshServer.stop();
+	}
+
+	/**
+	 * @return the port the server listens on, resolved once started
+	 */
+	public int getPort() {
+		return sshServer.getPort();
+	}
+
+	/**
+	 * Drops every client session, as a network failure would.
+	 */
+	public void closeSessions() {
+		List<? extends Session> sessions = sshServer.getActiveSessions();
+		for (Session session : sessions) {
+			session.close(true);
+		}
+	}
+}
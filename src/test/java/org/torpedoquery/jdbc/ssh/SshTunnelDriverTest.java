@@ -0,0 +1,248 @@
+/**
+ * Copyright © 2018 Xavier Jodoin (xavier@jodoin.me)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.torpedoquery.jdbc.ssh;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.KeyPair;
+
+public class SshTunnelDriverTest {
+
+	private static final String SSH_USER = "testuser";
+	private static final String SSH_PASSWORD = "testpass";
+
+	private static MockSSHServer sshServer;
+	private static EchoServer echoServer;
+	private static RecordingDriver recordingDriver;
+
+	private Path directory;
+	private Path privateKey;
+	private SshTunnelDriver driver;
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		sshServer = new MockSSHServer(0, SSH_USER, SSH_PASSWORD);
+		sshServer.start();
+		echoServer = new EchoServer();
+		recordingDriver = new RecordingDriver();
+		DriverManager.registerDriver(recordingDriver);
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		if (recordingDriver != null) {
+			DriverManager.deregisterDriver(recordingDriver);
+		}
+		if (echoServer != null) {
+			echoServer.close();
+		}
+		if (sshServer != null) {
+			sshServer.stop();
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("ssh-tunnel");
+		privateKey = directory.resolve("id_ecdsa");
+		KeyPair keyPair = KeyPair.genKeyPair(new JSch(), KeyPair.ECDSA, 256);
+		keyPair.writePrivateKey(privateKey.toString());
+		keyPair.dispose();
+		// A fresh driver per test so tunnels are not shared between tests
+		driver = new SshTunnelDriver();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		sshServer.closeSessions();
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.deleteIfExists(file);
+			}
+		}
+		Files.deleteIfExists(directory);
+	}
+
+	@Test
+	public void testConnectThroughEphemeralPort() throws Exception {
+		driver.connect(tunnelUrl(""), new Properties());
+
+		URI rewritten = recordingDriver.getLastUri();
+		assertEquals("localhost", rewritten.getHost());
+		assertTrue(rewritten.getPort() > 0);
+		assertNotEquals(echoServer.getPort(), rewritten.getPort());
+		assertEquals("/db", rewritten.getPath());
+
+		try (Socket client = new Socket(rewritten.getHost(), rewritten.getPort())) {
+			assertEchoes(client.getOutputStream(), client.getInputStream());
+		}
+	}
+
+	@Test
+	public void testConnectThroughLocalSocket() throws Exception {
+		Assume.assumeTrue("Unix domain sockets require Java 16", Runtime.version().feature() >= 16);
+		Path socket = directory.resolve("db.sock");
+
+		driver.connect(tunnelUrl("&sshLocalSocket=" + socket + "&socketFactoryArg=" + socket), new Properties());
+
+		URI rewritten = recordingDriver.getLastUri();
+		assertEquals("localhost", rewritten.getHost());
+		assertEquals(-1, rewritten.getPort());
+		assertTrue(Files.exists(socket));
+
+		assertEchoes(socket);
+	}
+
+	@Test
+	public void testReplacesDroppedLocalSocketTunnel() throws Exception {
+		Assume.assumeTrue("Unix domain sockets require Java 16", Runtime.version().feature() >= 16);
+		Path socket = directory.resolve("db.sock");
+		String url = tunnelUrl("&sshLocalSocket=" + socket + "&socketFactoryArg=" + socket);
+
+		driver.connect(url, new Properties());
+		sshServer.closeSessions();
+
+		// The forwarder removes its socket once it notices the dropped session
+		long deadline = System.currentTimeMillis() + 5000;
+		while (Files.exists(socket) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertFalse(Files.exists(socket));
+
+		driver.connect(url, new Properties());
+		assertEchoes(socket);
+	}
+
+	@Test(expected = SQLException.class)
+	public void testRejectsUnreferencedLocalSocket() throws Exception {
+		driver.connect(tunnelUrl("&sshLocalSocket=" + directory.resolve("db.sock")), new Properties());
+	}
+
+	private String tunnelUrl(String extraParams) {
+		return "jdbc:ssh:echo://127.0.0.1:" + echoServer.getPort() + "/db"
+				+ "?sshHost=127.0.0.1"
+				+ "&sshPort=" + sshServer.getPort()
+				+ "&sshUser=" + SSH_USER
+				+ "&sshKey=" + privateKey
+				+ extraParams;
+	}
+
+	private static void assertEchoes(Path socket) throws IOException {
+		try (SocketChannel client = UnixSocketForwarder.openUnixChannel()) {
+			client.connect(UnixSocketForwarder.unixSocketAddress(socket));
+			client.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+			ByteBuffer received = ByteBuffer.allocate(3);
+			while (received.hasRemaining()) {
+				assertNotEquals(-1, client.read(received));
+			}
+			assertArrayEquals(new byte[] { 1, 2, 3 }, received.array());
+		}
+	}
+
+	private static void assertEchoes(OutputStream out, InputStream in) throws IOException {
+		out.write(new byte[] { 1, 2, 3 });
+		out.flush();
+
+		byte[] received = new byte[3];
+		int read = 0;
+		while (read < received.length) {
+			int n = in.read(received, read, received.length - read);
+			assertNotEquals(-1, n);
+			read += n;
+		}
+		assertArrayEquals(new byte[] { 1, 2, 3 }, received);
+	}
+
+	/**
+	 * Underlying driver for {@code jdbc:echo:} URLs that records the URL it is asked to
+	 * connect to instead of opening a connection.
+	 */
+	public static class RecordingDriver implements Driver {
+
+		private volatile String lastUrl;
+
+		URI getLastUri() throws Exception {
+			return new URI(lastUrl.substring("jdbc:".length()));
+		}
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+			lastUrl = url;
+			return null;
+		}
+
+		@Override
+		public boolean acceptsURL(String url) throws SQLException {
+			return url.startsWith("jdbc:echo:");
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+}
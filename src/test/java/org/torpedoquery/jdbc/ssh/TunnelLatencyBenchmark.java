@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2018 Xavier Jodoin (xavier@jodoin.me)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.torpedoquery.jdbc.ssh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.Session;
+
+/**
+ * Measures round-trip latency through the tunnel for both local endpoints: the JSch TCP
+ * forward on an ephemeral port and the {@link UnixSocketForwarder}. A direct connection to
+ * the echo server is timed as well to show the cost of the SSH leg itself.
+ * <p>
+ * Everything runs in process against {@link MockSSHServer} and {@link EchoServer}, so the
+ * numbers show the relative overhead of each local endpoint, not real network latency.
+ * Run with {@code java ... TunnelLatencyBenchmark [iterations] [payloadBytes]}; requires Java 16.
+ */
+public class TunnelLatencyBenchmark {
+
+	private static final int ROUNDS = 3;
+	private static final int WARMUP = 5_000;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		int payload = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+		MockSSHServer sshServer = new MockSSHServer(0, "bench", "bench");
+		sshServer.start();
+		Path directory = Files.createTempDirectory("ssh-tunnel-bench");
+		Path socket = directory.resolve("bench.sock");
+
+		try (EchoServer echoServer = new EchoServer()) {
+			Session session = new JSch().getSession("bench", "127.0.0.1", sshServer.getPort());
+			session.setPassword("bench");
+			session.setConfig("StrictHostKeyChecking", "no");
+			session.connect();
+
+			int localPort = session.setPortForwardingL(0, "127.0.0.1", echoServer.getPort());
+			UnixSocketForwarder forwarder = UnixSocketForwarder.start(session, socket, "127.0.0.1", echoServer.getPort());
+
+			System.out.printf("%d round trips of %d bytes per run%n", iterations, payload);
+			for (int round = 1; round <= ROUNDS; round++) {
+				try (Socket direct = tcp(echoServer.getPort());
+						Socket forwarded = tcp(localPort);
+						SocketChannel unix = UnixSocketForwarder.openUnixChannel()) {
+					unix.connect(UnixSocketForwarder.unixSocketAddress(socket));
+
+					report(round, "direct TCP, no tunnel", measure(direct, iterations, payload));
+					report(round, "tunnel, TCP port", measure(forwarded, iterations, payload));
+					report(round, "tunnel, Unix socket", measure(unix, iterations, payload));
+				}
+			}
+
+			forwarder.close();
+			session.disconnect();
+		} finally {
+			sshServer.stop();
+			Files.deleteIfExists(socket);
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	private static Socket tcp(int port) throws IOException {
+		Socket socket = new Socket("127.0.0.1", port);
+		socket.setTcpNoDelay(true);
+		return socket;
+	}
+
+	private static long[] measure(Socket socket, int iterations, int payload) throws IOException {
+		OutputStream out = socket.getOutputStream();
+		InputStream in = socket.getInputStream();
+		byte[] buffer = new byte[payload];
+		long[] samples = new long[iterations];
+
+		for (int i = -WARMUP; i < iterations; i++) {
+			long start = System.nanoTime();
+			out.write(buffer);
+			int read = 0;
+			while (read < payload) {
+				int n = in.read(buffer, read, payload - read);
+				if (n == -1) {
+					throw new IOException("Connection closed");
+				}
+				read += n;
+			}
+			if (i >= 0) {
+				samples[i] = System.nanoTime() - start;
+			}
+		}
+		return samples;
+	}
+
+	private static long[] measure(SocketChannel channel, int iterations, int payload) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(payload);
+		long[] samples = new long[iterations];
+
+		for (int i = -WARMUP; i < iterations; i++) {
+			long start = System.nanoTime();
+			buffer.clear();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) == -1) {
+					throw new IOException("Connection closed");
+				}
+			}
+			if (i >= 0) {
+				samples[i] = System.nanoTime() - start;
+			}
+		}
+		return samples;
+	}
+
+	private static void report(int round, String name, long[] samples) {
+		Arrays.sort(samples);
+		System.out.printf("round %d  %-22s p50 %6.1f us  p99 %7.1f us  mean %6.1f us%n", round, name,
+				samples[samples.length / 2] / 1000.0,
+				samples[(int) (samples.length * 0.99)] / 1000.0,
+				Arrays.stream(samples).average().orElse(0) / 1000.0);
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright © 2018 Xavier Jodoin (xavier@jodoin.me)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.torpedoquery.jdbc.ssh;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.Session;
+
+public class UnixSocketForwarderTest {
+
+	private static final String SSH_USER = "testuser";
+	private static final String SSH_PASSWORD = "testpass";
+
+	private static MockSSHServer sshServer;
+	private static EchoServer echoServer;
+
+	private Path directory;
+	private Session session;
+
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		Assume.assumeTrue("Unix domain sockets require Java 16", Runtime.version().feature() >= 16);
+
+		sshServer = new MockSSHServer(0, SSH_USER, SSH_PASSWORD);
+		sshServer.start();
+		echoServer = new EchoServer();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws IOException {
+		if (echoServer != null) {
+			echoServer.close();
+		}
+		if (sshServer != null) {
+			sshServer.stop();
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("ssh-tunnel");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (session != null) {
+			session.disconnect();
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.deleteIfExists(file);
+			}
+		}
+		Files.deleteIfExists(directory);
+	}
+
+	@Test
+	public void testMissingPathIsLeftAlone() throws IOException {
+		UnixSocketForwarder.removeStaleSocket(directory.resolve("missing.sock"));
+	}
+
+	@Test
+	public void testRegularFileIsNotReplaced() throws IOException {
+		Path file = Files.write(directory.resolve("config.yml"), new byte[] { 1, 2, 3 });
+
+		try {
+			UnixSocketForwarder.removeStaleSocket(file);
+			fail("A regular file must not be replaced");
+		} catch (IOException e) {
+			assertTrue(Files.exists(file));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testDirectoryIsNotReplaced() throws IOException {
+		UnixSocketForwarder.removeStaleSocket(Files.createDirectory(directory.resolve("dir")));
+	}
+
+	@Test
+	public void testStaleSocketIsRemoved() throws IOException {
+		Path socket = directory.resolve("stale.sock");
+		// Closing the channel leaves the socket file behind with nobody listening
+		bind(socket).close();
+
+		assertTrue(Files.exists(socket));
+		UnixSocketForwarder.removeStaleSocket(socket);
+		assertFalse(Files.exists(socket));
+	}
+
+	@Test
+	public void testLiveSocketIsNotReplaced() throws IOException {
+		Path socket = directory.resolve("live.sock");
+
+		try (ServerSocketChannel listener = bind(socket)) {
+			UnixSocketForwarder.removeStaleSocket(socket);
+			fail("A socket with a listener must not be replaced");
+		} catch (BindException e) {
+			assertTrue(Files.exists(socket));
+		}
+	}
+
+	@Test
+	public void testReplacedSocketIsNotDeleted() throws IOException {
+		Path socket = directory.resolve("replaced.sock");
+		bind(socket).close();
+		UnixSocketForwarder.SocketFileId original = UnixSocketForwarder.SocketFileId.of(socket);
+
+		Files.delete(socket);
+		bind(socket).close();
+
+		UnixSocketForwarder.deleteIfOwned(socket, original);
+		assertTrue(Files.exists(socket));
+
+		UnixSocketForwarder.deleteIfOwned(socket, UnixSocketForwarder.SocketFileId.of(socket));
+		assertFalse(Files.exists(socket));
+	}
+
+	@Test
+	public void testForwardsThroughSocket() throws Exception {
+		session = connect();
+		Path socket = directory.resolve("tunnel.sock");
+		UnixSocketForwarder forwarder = UnixSocketForwarder.start(session, socket, "127.0.0.1", echoServer.getPort());
+
+		byte[] payload = new byte[256 * 1024];
+		new Random(42).nextBytes(payload);
+
+		try (SocketChannel client = UnixSocketForwarder.openUnixChannel()) {
+			client.connect(UnixSocketForwarder.unixSocketAddress(socket));
+			Thread writer = new Thread(() -> {
+				try {
+					ByteBuffer buffer = ByteBuffer.wrap(payload);
+					while (buffer.hasRemaining()) {
+						client.write(buffer);
+					}
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			writer.start();
+
+			ByteBuffer received = ByteBuffer.allocate(payload.length);
+			while (received.hasRemaining() && client.read(received) != -1) {
+				// Keep reading until the whole payload came back
+			}
+			writer.join();
+
+			assertArrayEquals(payload, received.array());
+		}
+
+		forwarder.close();
+		assertFalse(Files.exists(socket));
+	}
+
+	@Test
+	public void testClosesWhenSessionDisconnects() throws Exception {
+		session = connect();
+		Path socket = directory.resolve("dropped.sock");
+		UnixSocketForwarder forwarder = UnixSocketForwarder.start(session, socket, "127.0.0.1", echoServer.getPort());
+
+		session.disconnect();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!forwarder.isClosed() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertTrue(forwarder.isClosed());
+		assertFalse(Files.exists(socket));
+	}
+
+	private static Session connect() throws Exception {
+		Session session = new JSch().getSession(SSH_USER, "127.0.0.1", sshServer.getPort());
+		session.setPassword(SSH_PASSWORD);
+		session.setConfig("StrictHostKeyChecking", "no");
+		session.connect();
+		return session;
+	}
+
+	private static ServerSocketChannel bind(Path socket) throws IOException {
+		ServerSocketChannel channel = UnixSocketForwarder.openUnixServerChannel();
+		channel.bind(UnixSocketForwarder.unixSocketAddress(socket));
+		return channel;
+	}
+}